@@ -20,6 +20,7 @@ import android.content.ComponentName;
 import android.content.Intent;
 import android.graphics.drawable.Drawable;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 /**
  * Represents a app shortcut
@@ -36,6 +37,7 @@ public final class AppShortcut {
     private final CharSequence disabledMessage;
 
     private final Drawable icon;
+    private final int iconResId;
 
     AppShortcut(@NonNull String id,
                 @NonNull Intent intent,
@@ -43,7 +45,8 @@ public final class AppShortcut {
                 @NonNull CharSequence shortLabel,
                 @NonNull CharSequence longLabel,
                 @NonNull CharSequence disabledMessage,
-                @NonNull Drawable icon) {
+                @Nullable Drawable icon,
+                int iconResId) {
         this.id = id;
         this.intent = intent;
         this.activity = activity;
@@ -51,6 +54,7 @@ public final class AppShortcut {
         this.longLabel = longLabel;
         this.disabledMessage = disabledMessage;
         this.icon = icon;
+        this.iconResId = iconResId;
     }
 
     /**
@@ -106,6 +110,15 @@ public final class AppShortcut {
      */
     @NonNull
     public Drawable getIcon() {
+        // only internal shortcuts of the provider index are created without an icon
+        //noinspection ConstantConditions
         return icon;
     }
+
+    /**
+     * Returns the icon resource id inside of the shortcut package
+     */
+    int getIconResId() {
+        return iconResId;
+    }
 }
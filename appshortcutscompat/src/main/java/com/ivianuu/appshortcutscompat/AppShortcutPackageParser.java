@@ -57,9 +57,9 @@ final class AppShortcutPackageParser {
      * Returns parsed shortcuts xml map
      */
     @NonNull
-    static HashMap<ComponentName, Integer> parse(Context context, String packageName) throws Exception {
-        Resources resources = context.createPackageContext(packageName, Context.CONTEXT_IGNORE_SECURITY)
-                .getResources();
+    static HashMap<ComponentName, Integer> parse(Context context,
+                                                 Resources resources,
+                                                 String packageName) throws Exception {
         AssetManager assets = resources.getAssets();
 
         ApplicationInfo info = context.getPackageManager().getApplicationInfo(packageName,
@@ -71,18 +71,18 @@ final class AppShortcutPackageParser {
             throw new RuntimeException("Failed adding asset path: " + info.publicSourceDir);
         }
 
-        return parseManifest(assets, cookie, packageName);
+        return parseManifest(assets.openXmlResourceParser(cookie, ANDROID_MANIFEST_FILENAME), packageName);
     }
 
-    private static HashMap<ComponentName, Integer> parseManifest(AssetManager assets,
-                                                                 int cookie,
-                                                                 String packageName) throws IOException, XmlPullParserException {
+    /**
+     * Returns parsed shortcuts xml map of the manifest
+     */
+    @NonNull
+    static HashMap<ComponentName, Integer> parseManifest(XmlPullParser parser,
+                                                         String packageName) throws IOException, XmlPullParserException {
         HashMap<ComponentName, Integer> map = new HashMap<>();
 
-        XmlPullParser parser = assets.openXmlResourceParser(cookie, ANDROID_MANIFEST_FILENAME);
-
-        parser.next();
-        parser.next();
+        moveToRootTag(parser);
         parser.require(XmlPullParser.START_TAG, null, TAG_MANIFEST);
         while (parser.next() == XmlPullParser.START_TAG) {
             if (TAG_APPLICATION.equals(parser.getName())) {
@@ -148,6 +148,13 @@ final class AppShortcutPackageParser {
         skip(parser);
     }
 
+    private static void moveToRootTag(XmlPullParser parser) throws XmlPullParserException, IOException {
+        int type;
+        do {
+            type = parser.next();
+        } while (type != XmlPullParser.START_TAG && type != XmlPullParser.END_DOCUMENT);
+    }
+
     private static String getAttribute(XmlPullParser parser, String attr) {
         return parser.getAttributeValue(NAMESPACE_ANDROID, attr);
     }
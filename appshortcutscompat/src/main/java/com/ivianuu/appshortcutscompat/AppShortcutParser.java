@@ -17,11 +17,9 @@
 package com.ivianuu.appshortcutscompat;
 
 import android.content.ComponentName;
-import android.content.Context;
 import android.content.Intent;
 import android.content.pm.ActivityInfo;
 import android.content.pm.PackageInfo;
-import android.content.pm.PackageManager;
 import android.content.res.Resources;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
@@ -59,22 +57,30 @@ final class AppShortcutParser {
     }
 
     /**
-     * Returns the parsed app shortcuts
+     * Returns the parsed app shortcuts,
+     * without inflating icons the shortcuts only carry the icon resource id
      */
     @NonNull
-    static List<AppShortcut> parse(Context context,
-                                   Resources resources,
-                                   String packageName,
+    static List<AppShortcut> parse(Resources resources,
+                                   PackageInfo packageInfo,
                                    ComponentName componentName,
-                                   int resId) throws Exception {
-        PackageInfo packageInfo = context.getPackageManager().getPackageInfo(packageName, PackageManager.GET_ACTIVITIES);
+                                   int resId,
+                                   boolean inflateIcons) throws Exception {
+        return parse(resources, packageInfo, componentName, resources.getXml(resId), inflateIcons);
+    }
 
+    /**
+     * Returns the parsed app shortcuts of the shortcuts xml
+     */
+    @NonNull
+    static List<AppShortcut> parse(Resources resources,
+                                   PackageInfo packageInfo,
+                                   ComponentName componentName,
+                                   XmlPullParser parser,
+                                   boolean inflateIcons) throws Exception {
         List<AppShortcut> appShortcuts = new ArrayList<>();
 
-        XmlPullParser parser = resources.getXml(resId);
-
-        parser.next();
-        parser.next();
+        moveToRootTag(parser);
         parser.require(XmlPullParser.START_TAG, null, TAG_SHORTCUTS);
         while (parser.next() != XmlPullParser.END_TAG) {
             parser.require(XmlPullParser.START_TAG, null, TAG_SHORTCUT);
@@ -82,7 +88,8 @@ final class AppShortcutParser {
             CharSequence shortLabel = getCharSequence(resources, parser, ATTRIBUTE_SHORTCUT_SHORT_LABEL);
             CharSequence longLabel = getCharSequence(resources, parser, ATTRIBUTE_SHORTCUT_LONG_LABEL);
             CharSequence disabledMessage = getCharSequence(resources, parser, ATTRIBUTE_SHORTCUT_DISABLED_MESSAGE);
-            Drawable icon = resources.getDrawable(getResourceAttribute(parser, ATTRIBUTE_SHORTCUT_ICON));
+            int iconResId = getResourceAttribute(parser, ATTRIBUTE_SHORTCUT_ICON);
+            Drawable icon = inflateIcons ? resources.getDrawable(iconResId) : null;
             Intent activity = null;
             int depth = 1;
             while (depth != 0) {
@@ -130,7 +137,8 @@ final class AppShortcutParser {
                         shortLabel,
                         longLabel,
                         disabledMessage,
-                        icon));
+                        icon,
+                        iconResId));
             }
         }
 
@@ -188,6 +196,13 @@ final class AppShortcutParser {
         return Integer.parseInt(value.substring(1));
     }
 
+    private static void moveToRootTag(XmlPullParser parser) throws XmlPullParserException, IOException {
+        int type;
+        do {
+            type = parser.next();
+        } while (type != XmlPullParser.START_TAG && type != XmlPullParser.END_DOCUMENT);
+    }
+
     private static String getAttribute(XmlPullParser parser, String attr) {
         return parser.getAttributeValue(NAMESPACE_ANDROID, attr);
     }
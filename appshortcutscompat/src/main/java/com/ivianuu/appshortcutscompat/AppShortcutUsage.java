@@ -0,0 +1,203 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.appshortcutscompat;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores decaying launch scores of app shortcuts
+ *
+ * The store is backed by shared preferences and guarded by a lock of the current process,
+ * it's only consistent as long as a single process reads and writes it.
+ * Apps with multiple processes go through the {@link AppShortcutsProvider} which owns the store.
+ */
+final class AppShortcutUsage {
+
+    private static final String PREFS_NAME = "appshortcutscompat_usage";
+    private static final char KEY_SEPARATOR = '/';
+    private static final char VALUE_SEPARATOR = ',';
+
+    static final long HALF_LIFE = 7L * 24 * 60 * 60 * 1000; // 7 days
+    static final int MAX_ENTRIES = 64;
+
+    private AppShortcutUsage() {
+        // no instances
+    }
+
+    /**
+     * A ranked shortcut reference
+     */
+    static final class Entry {
+
+        final String packageName;
+        final String shortcutId;
+        final double score;
+        final long timestamp;
+
+        Entry(String packageName, String shortcutId, double score, long timestamp) {
+            this.packageName = packageName;
+            this.shortcutId = shortcutId;
+            this.score = score;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Records a launch of the shortcut
+     */
+    static void recordLaunch(Context context, String packageName, String shortcutId) {
+        recordLaunch(context, packageName, shortcutId, System.currentTimeMillis());
+    }
+
+    /**
+     * Records a launch of the shortcut at the given time
+     */
+    static synchronized void recordLaunch(Context context, String packageName, String shortcutId, long now) {
+        String key = packageName + KEY_SEPARATOR + shortcutId;
+
+        List<Entry> entries = readEntries(context, now);
+        double score = 1;
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (entry.packageName.equals(packageName) && entry.shortcutId.equals(shortcutId)) {
+                score += entry.score;
+                entries.remove(i);
+                break;
+            }
+        }
+
+        SharedPreferences.Editor editor = getPrefs(context).edit()
+                .putString(key, toValue(score, now));
+
+        // drop the lowest ranked other entries to keep the store small,
+        // the recorded entry always stays so new shortcuts can climb the ranking
+        if (entries.size() >= MAX_ENTRIES) {
+            sort(entries);
+            for (Entry entry : entries.subList(MAX_ENTRIES - 1, entries.size())) {
+                editor.remove(entry.packageName + KEY_SEPARATOR + entry.shortcutId);
+            }
+        }
+
+        editor.apply();
+    }
+
+    /**
+     * Returns all entries ordered by their rank
+     */
+    @NonNull
+    static List<Entry> getRankedEntries(Context context) {
+        return getRankedEntries(context, System.currentTimeMillis());
+    }
+
+    /**
+     * Returns all entries ordered by their rank at the given time
+     */
+    @NonNull
+    static synchronized List<Entry> getRankedEntries(Context context, long now) {
+        List<Entry> entries = readEntries(context, now);
+        sort(entries);
+        return entries;
+    }
+
+    /**
+     * Removes the entries from the store
+     */
+    static synchronized void removeEntries(Context context, List<Entry> entries) {
+        SharedPreferences.Editor editor = getPrefs(context).edit();
+        for (Entry entry : entries) {
+            editor.remove(entry.packageName + KEY_SEPARATOR + entry.shortcutId);
+        }
+        editor.apply();
+    }
+
+    /**
+     * Removes all entries of the package from the store
+     */
+    static synchronized void removePackage(Context context, String packageName) {
+        String prefix = packageName + KEY_SEPARATOR;
+        SharedPreferences prefs = getPrefs(context);
+        SharedPreferences.Editor editor = prefs.edit();
+        for (String key : prefs.getAll().keySet()) {
+            if (key.startsWith(prefix)) {
+                editor.remove(key);
+            }
+        }
+        editor.apply();
+    }
+
+    private static List<Entry> readEntries(Context context, long now) {
+        Map<String, ?> all = getPrefs(context).getAll();
+        List<Entry> entries = new ArrayList<>(all.size() + 1);
+        for (Map.Entry<String, ?> pref : all.entrySet()) {
+            String key = pref.getKey();
+            Object value = pref.getValue();
+            int keySeparator = key.indexOf(KEY_SEPARATOR);
+            if (keySeparator == -1 || !(value instanceof String)) continue;
+
+            String stringValue = (String) value;
+            int valueSeparator = stringValue.indexOf(VALUE_SEPARATOR);
+            if (valueSeparator == -1) continue;
+
+            try {
+                double score = Double.parseDouble(stringValue.substring(0, valueSeparator));
+                long timestamp = Long.parseLong(stringValue.substring(valueSeparator + 1));
+                entries.add(new Entry(
+                        key.substring(0, keySeparator),
+                        key.substring(keySeparator + 1),
+                        decay(score, timestamp, now),
+                        timestamp));
+            } catch (NumberFormatException ignore) {
+
+            }
+        }
+        return entries;
+    }
+
+    private static double decay(double score, long timestamp, long now) {
+        long elapsed = Math.max(0, now - timestamp);
+        return score * Math.pow(0.5, (double) elapsed / HALF_LIFE);
+    }
+
+    private static void sort(List<Entry> entries) {
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry o1, Entry o2) {
+                int result = Double.compare(o2.score, o1.score);
+                if (result == 0 && o1.timestamp != o2.timestamp) {
+                    result = o2.timestamp > o1.timestamp ? 1 : -1;
+                }
+                return result;
+            }
+        });
+    }
+
+    private static String toValue(double score, long timestamp) {
+        return String.valueOf(score) + VALUE_SEPARATOR + timestamp;
+    }
+
+    private static SharedPreferences getPrefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -18,11 +18,17 @@ package com.ivianuu.appshortcutscompat;
 
 import android.content.ComponentName;
 import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.res.Resources;
+import android.database.Cursor;
+import android.os.AsyncTask;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -45,17 +51,242 @@ public final class AppShortcutsCompat {
                                                     @NonNull String packageName) throws Exception {
         checkNotNull(context, "context == null");
         checkNotNull(packageName, "packageName == null");
+        return parseAppShortcuts(context, packageName, true);
+    }
 
+    /**
+     * Returns a list of app shortcuts for the package,
+     * without inflating icons the shortcuts only carry the icon resource id
+     */
+    @NonNull
+    static List<AppShortcut> parseAppShortcuts(Context context,
+                                               String packageName,
+                                               boolean inflateIcons) throws Exception {
         List<AppShortcut> shortcuts = new ArrayList<>();
 
         Resources resources = context.createPackageContext(packageName, Context.CONTEXT_IGNORE_SECURITY)
                 .getResources();
 
-        Map<ComponentName, Integer> resMap = AppShortcutPackageParser.parse(context, packageName);
+        PackageInfo packageInfo = null;
+
+        Map<ComponentName, Integer> resMap = AppShortcutPackageParser.parse(context, resources, packageName);
         for (Map.Entry<ComponentName, Integer> entry : resMap.entrySet()) {
-            shortcuts.addAll(AppShortcutParser.parse(context, resources, packageName, entry.getKey(), entry.getValue()));
+            if (packageInfo == null) {
+                packageInfo = context.getPackageManager().getPackageInfo(packageName, PackageManager.GET_ACTIVITIES);
+            }
+            shortcuts.addAll(AppShortcutParser.parse(
+                    resources, packageInfo, entry.getKey(), entry.getValue(), inflateIcons));
+        }
+
+        return shortcuts;
+    }
+
+    /**
+     * Returns a list of app shortcuts for the package from the {@link AppShortcutsProvider}
+     * registered under the authority, which parses each package only once for all processes
+     *
+     * Throws an {@link IllegalStateException} if the provider failed to parse the package
+     */
+    @NonNull
+    public static List<AppShortcut> queryAppShortcuts(@NonNull Context context,
+                                                      @NonNull String authority,
+                                                      @NonNull String packageName) throws Exception {
+        checkNotNull(context, "context == null");
+        checkNotNull(authority, "authority == null");
+        checkNotNull(packageName, "packageName == null");
+
+        List<AppShortcut> shortcuts = new ArrayList<>();
+
+        Cursor cursor = context.getContentResolver().query(
+                AppShortcutsProvider.getContentUri(authority, packageName), null, null, null, null);
+        if (cursor == null) {
+            throw new IllegalStateException("No provider registered for " + authority);
+        }
+
+        try {
+            if (cursor.getCount() == 0) {
+                return shortcuts;
+            }
+
+            Resources resources = context.createPackageContext(packageName, Context.CONTEXT_IGNORE_SECURITY)
+                    .getResources();
+
+            int idIndex = cursor.getColumnIndexOrThrow(AppShortcutsProvider.COLUMN_ID);
+            int activityIndex = cursor.getColumnIndexOrThrow(AppShortcutsProvider.COLUMN_ACTIVITY);
+            int intentIndex = cursor.getColumnIndexOrThrow(AppShortcutsProvider.COLUMN_INTENT);
+            int shortLabelIndex = cursor.getColumnIndexOrThrow(AppShortcutsProvider.COLUMN_SHORT_LABEL);
+            int longLabelIndex = cursor.getColumnIndexOrThrow(AppShortcutsProvider.COLUMN_LONG_LABEL);
+            int disabledMessageIndex = cursor.getColumnIndexOrThrow(AppShortcutsProvider.COLUMN_DISABLED_MESSAGE);
+            int iconResIdIndex = cursor.getColumnIndexOrThrow(AppShortcutsProvider.COLUMN_ICON_RES_ID);
+
+            while (cursor.moveToNext()) {
+                int iconResId = cursor.getInt(iconResIdIndex);
+                shortcuts.add(new AppShortcut(
+                        cursor.getString(idIndex),
+                        Intent.parseUri(cursor.getString(intentIndex), 0),
+                        ComponentName.unflattenFromString(cursor.getString(activityIndex)),
+                        cursor.getString(shortLabelIndex),
+                        cursor.getString(longLabelIndex),
+                        cursor.getString(disabledMessageIndex),
+                        resources.getDrawable(iconResId),
+                        iconResId));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return shortcuts;
+    }
+
+    /**
+     * Starts the app shortcut and records the launch for {@link #getTopAppShortcuts(Context, int)}
+     *
+     * The launch is recorded in the background so this is safe to call from a click listener.
+     * The launch store is local to the calling process,
+     * use {@link #startAppShortcut(Context, String, AppShortcut)} if multiple processes record launches
+     */
+    public static void startAppShortcut(@NonNull Context context,
+                                        @NonNull AppShortcut appShortcut) {
+        checkNotNull(context, "context == null");
+        checkNotNull(appShortcut, "appShortcut == null");
+
+        context.startActivity(appShortcut.getIntent());
+
+        final Context appContext = context.getApplicationContext();
+        final String packageName = appShortcut.getActivity().getPackageName();
+        final String shortcutId = appShortcut.getId();
+        // serial so launches are recorded in order
+        AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                AppShortcutUsage.recordLaunch(appContext, packageName, shortcutId);
+            }
+        });
+    }
+
+    /**
+     * Starts the app shortcut and records the launch in the {@link AppShortcutsProvider}
+     * registered under the authority for {@link #getTopAppShortcuts(Context, String, int)}
+     *
+     * The launch is recorded in the background so this is safe to call from a click listener.
+     * Throws an {@link IllegalArgumentException} before starting the shortcut
+     * if no provider is registered under the authority
+     */
+    public static void startAppShortcut(@NonNull Context context,
+                                        @NonNull final String authority,
+                                        @NonNull AppShortcut appShortcut) {
+        checkNotNull(context, "context == null");
+        checkNotNull(authority, "authority == null");
+        checkNotNull(appShortcut, "appShortcut == null");
+
+        if (context.getPackageManager().resolveContentProvider(authority, 0) == null) {
+            throw new IllegalArgumentException("No provider registered for " + authority);
+        }
+
+        context.startActivity(appShortcut.getIntent());
+
+        final Context appContext = context.getApplicationContext();
+        final String packageName = appShortcut.getActivity().getPackageName();
+        final String shortcutId = appShortcut.getId();
+        // the binder call may cold start the provider process, keep it off the caller thread
+        AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    AppShortcutsProvider.recordLaunch(appContext, authority, packageName, shortcutId);
+                } catch (RuntimeException ignore) {
+                    // the shortcut is already started, losing a launch beats crashing
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the most used app shortcuts launched via {@link #startAppShortcut(Context, AppShortcut)},
+     * only the packages of these shortcuts will be parsed
+     */
+    @NonNull
+    public static List<AppShortcut> getTopAppShortcuts(@NonNull Context context, int count) {
+        checkNotNull(context, "context == null");
+        return resolveTopAppShortcuts(context, null, count);
+    }
+
+    /**
+     * Returns the most used app shortcuts launched via {@link #startAppShortcut(Context, String, AppShortcut)}
+     * from the {@link AppShortcutsProvider} registered under the authority
+     */
+    @NonNull
+    public static List<AppShortcut> getTopAppShortcuts(@NonNull Context context,
+                                                       @NonNull String authority,
+                                                       int count) {
+        checkNotNull(context, "context == null");
+        checkNotNull(authority, "authority == null");
+        return resolveTopAppShortcuts(context, authority, count);
+    }
+
+    private static List<AppShortcut> resolveTopAppShortcuts(Context context,
+                                                            @Nullable String authority,
+                                                            int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count < 0");
+        }
+
+        List<AppShortcutUsage.Entry> entries = authority != null
+                ? AppShortcutsProvider.getRankedEntries(context, authority)
+                : AppShortcutUsage.getRankedEntries(context);
+
+        List<AppShortcut> shortcuts = new ArrayList<>(count);
+        List<AppShortcutUsage.Entry> deadEntries = new ArrayList<>();
+
+        // parse every referenced package only once
+        Map<String, Map<String, AppShortcut>> packages = new HashMap<>();
+        for (AppShortcutUsage.Entry entry : entries) {
+            if (shortcuts.size() == count) break;
+
+            if (!packages.containsKey(entry.packageName)) {
+                packages.put(entry.packageName, getAppShortcutsById(context, authority, entry.packageName));
+            }
+
+            Map<String, AppShortcut> shortcutsById = packages.get(entry.packageName);
+            if (shortcutsById == null) continue; // unknown failure, keep the entry
+
+            AppShortcut shortcut = shortcutsById.get(entry.shortcutId);
+            if (shortcut != null) {
+                shortcuts.add(shortcut);
+            } else {
+                deadEntries.add(entry);
+            }
+        }
+
+        if (!deadEntries.isEmpty()) {
+            if (authority != null) {
+                AppShortcutsProvider.removeEntries(context, authority, deadEntries);
+            } else {
+                AppShortcutUsage.removeEntries(context, deadEntries);
+            }
         }
 
         return shortcuts;
     }
+
+    @Nullable
+    private static Map<String, AppShortcut> getAppShortcutsById(Context context,
+                                                                @Nullable String authority,
+                                                                String packageName) {
+        Map<String, AppShortcut> shortcutsById = new HashMap<>();
+        try {
+            List<AppShortcut> shortcuts = authority != null
+                    ? queryAppShortcuts(context, authority, packageName)
+                    : getAppShortcuts(context, packageName);
+            for (AppShortcut shortcut : shortcuts) {
+                shortcutsById.put(shortcut.getId(), shortcut);
+            }
+        } catch (PackageManager.NameNotFoundException e) {
+            // the package is gone, so are its shortcuts
+        } catch (Exception e) {
+            // parse failures of the provider end up here as well, keep the entries
+            return null;
+        }
+        return shortcutsById;
+    }
 }
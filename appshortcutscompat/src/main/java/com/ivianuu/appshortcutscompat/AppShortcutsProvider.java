@@ -0,0 +1,362 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.appshortcutscompat;
+
+import android.content.BroadcastReceiver;
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.content.pm.ProviderInfo;
+import android.content.res.Configuration;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static com.ivianuu.appshortcutscompat.Preconditions.checkNotNull;
+
+/**
+ * Optional provider which owns a single shortcut index for all processes of an app.
+ *
+ * Declare it in your manifest with an authority of your choice and query it
+ * with {@link AppShortcutsCompat#queryAppShortcuts(Context, String, String)}.
+ * Every package is parsed once and kept until the package changes
+ * or the locale changes.
+ *
+ * The provider also owns the shortcut launch store when launches are recorded with
+ * {@link AppShortcutsCompat#startAppShortcut(Context, String, AppShortcut)}.
+ */
+public class AppShortcutsProvider extends ContentProvider {
+
+    static final String PATH_SHORTCUTS = "shortcuts";
+
+    static final String COLUMN_ID = "id";
+    static final String COLUMN_ACTIVITY = "activity";
+    static final String COLUMN_INTENT = "intent";
+    static final String COLUMN_SHORT_LABEL = "short_label";
+    static final String COLUMN_LONG_LABEL = "long_label";
+    static final String COLUMN_DISABLED_MESSAGE = "disabled_message";
+    static final String COLUMN_ICON_RES_ID = "icon_res_id";
+
+    static final String METHOD_RECORD_LAUNCH = "record_launch";
+    static final String METHOD_GET_RANKED_ENTRIES = "get_ranked_entries";
+    static final String METHOD_REMOVE_ENTRIES = "remove_entries";
+
+    static final String EXTRA_PACKAGE_NAMES = "package_names";
+    static final String EXTRA_SHORTCUT_IDS = "shortcut_ids";
+
+    private static final String[] COLUMNS = {
+            COLUMN_ID,
+            COLUMN_ACTIVITY,
+            COLUMN_INTENT,
+            COLUMN_SHORT_LABEL,
+            COLUMN_LONG_LABEL,
+            COLUMN_DISABLED_MESSAGE,
+            COLUMN_ICON_RES_ID
+    };
+
+    private String authority;
+    private String locales;
+
+    private final HashMap<String, PackageRows> cache = new HashMap<>();
+
+    private final BroadcastReceiver packageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            if (data == null) return;
+            String packageName = data.getSchemeSpecificPart();
+            if (Intent.ACTION_PACKAGE_REMOVED.equals(intent.getAction())
+                    && !intent.getBooleanExtra(Intent.EXTRA_REPLACING, false)) {
+                AppShortcutUsage.removePackage(context, packageName);
+            }
+            invalidate(packageName);
+        }
+    };
+
+    /**
+     * Returns the uri which contains the shortcuts of the package
+     */
+    @NonNull
+    public static Uri getContentUri(@NonNull String authority, @NonNull String packageName) {
+        checkNotNull(authority, "authority == null");
+        checkNotNull(packageName, "packageName == null");
+        return getContentUri(authority).buildUpon()
+                .appendPath(packageName)
+                .build();
+    }
+
+    /**
+     * Returns the uri which gets notified when the shortcuts of any package change
+     */
+    @NonNull
+    public static Uri getContentUri(@NonNull String authority) {
+        checkNotNull(authority, "authority == null");
+        return new Uri.Builder()
+                .scheme("content")
+                .authority(authority)
+                .appendPath(PATH_SHORTCUTS)
+                .build();
+    }
+
+    @Override
+    public void attachInfo(Context context, ProviderInfo info) {
+        super.attachInfo(context, info);
+        authority = info.authority;
+    }
+
+    @Override
+    public boolean onCreate() {
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addDataScheme("package");
+        getContext().registerReceiver(packageReceiver, filter);
+        locales = getLocales(getContext().getResources().getConfiguration());
+        return true;
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        // only the labels depend on the configuration, icons are inflated by the caller
+        String newLocales = getLocales(newConfig);
+        if (newLocales.equals(locales)) return;
+        locales = newLocales;
+        synchronized (cache) {
+            cache.clear();
+        }
+        notifyChange(getContentUri(authority));
+    }
+
+    @Nullable
+    @Override
+    public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
+                        @Nullable String[] selectionArgs, @Nullable String sortOrder) {
+        List<String> segments = uri.getPathSegments();
+        if (segments.size() != 2 || !PATH_SHORTCUTS.equals(segments.get(0))) {
+            throw new IllegalArgumentException("Unknown uri: " + uri);
+        }
+        String packageName = segments.get(1);
+
+        List<Object[]> rows;
+        try {
+            rows = getRows(packageName);
+        } catch (Exception e) {
+            // reported to the caller, the failure is not cached so the next query retries
+            throw new IllegalStateException("Failed parsing " + packageName + ": " + e);
+        }
+
+        MatrixCursor cursor = new MatrixCursor(COLUMNS);
+        for (Object[] row : rows) {
+            cursor.addRow(row);
+        }
+        cursor.setNotificationUri(getContext().getContentResolver(), uri);
+        return cursor;
+    }
+
+    @Nullable
+    @Override
+    public Bundle call(@NonNull String method, @Nullable String arg, @Nullable Bundle extras) {
+        // call() bypasses the provider permissions, the launch store belongs to this app only
+        if (Binder.getCallingUid() != Process.myUid()) {
+            throw new SecurityException("Caller " + Binder.getCallingUid() + " is not allowed to call " + method);
+        }
+
+        switch (method) {
+            case METHOD_RECORD_LAUNCH:
+                for (AppShortcutUsage.Entry entry : fromBundle(extras)) {
+                    AppShortcutUsage.recordLaunch(getContext(), entry.packageName, entry.shortcutId);
+                }
+                return null;
+            case METHOD_GET_RANKED_ENTRIES:
+                return toBundle(AppShortcutUsage.getRankedEntries(getContext()));
+            case METHOD_REMOVE_ENTRIES:
+                AppShortcutUsage.removeEntries(getContext(), fromBundle(extras));
+                return null;
+            default:
+                return super.call(method, arg, extras);
+        }
+    }
+
+    @Nullable
+    @Override
+    public String getType(@NonNull Uri uri) {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public Uri insert(@NonNull Uri uri, @Nullable ContentValues values) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int update(@NonNull Uri uri, @Nullable ContentValues values, @Nullable String selection,
+                      @Nullable String[] selectionArgs) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Records a launch in the store of the provider
+     */
+    static void recordLaunch(Context context, String authority, String packageName, String shortcutId) {
+        List<AppShortcutUsage.Entry> entries = new ArrayList<>(1);
+        entries.add(new AppShortcutUsage.Entry(packageName, shortcutId, 0, 0));
+        call(context, authority, METHOD_RECORD_LAUNCH, toBundle(entries));
+    }
+
+    /**
+     * Returns the ranked entries of the store of the provider
+     */
+    @NonNull
+    static List<AppShortcutUsage.Entry> getRankedEntries(Context context, String authority) {
+        return fromBundle(call(context, authority, METHOD_GET_RANKED_ENTRIES, null));
+    }
+
+    /**
+     * Removes the entries from the store of the provider
+     */
+    static void removeEntries(Context context, String authority, List<AppShortcutUsage.Entry> entries) {
+        call(context, authority, METHOD_REMOVE_ENTRIES, toBundle(entries));
+    }
+
+    private static Bundle call(Context context, String authority, String method, @Nullable Bundle extras) {
+        return context.getContentResolver().call(getContentUri(authority), method, null, extras);
+    }
+
+    private static Bundle toBundle(List<AppShortcutUsage.Entry> entries) {
+        String[] packageNames = new String[entries.size()];
+        String[] shortcutIds = new String[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            packageNames[i] = entries.get(i).packageName;
+            shortcutIds[i] = entries.get(i).shortcutId;
+        }
+        Bundle bundle = new Bundle();
+        bundle.putStringArray(EXTRA_PACKAGE_NAMES, packageNames);
+        bundle.putStringArray(EXTRA_SHORTCUT_IDS, shortcutIds);
+        return bundle;
+    }
+
+    private static List<AppShortcutUsage.Entry> fromBundle(@Nullable Bundle bundle) {
+        List<AppShortcutUsage.Entry> entries = new ArrayList<>();
+        if (bundle == null) return entries;
+        String[] packageNames = bundle.getStringArray(EXTRA_PACKAGE_NAMES);
+        String[] shortcutIds = bundle.getStringArray(EXTRA_SHORTCUT_IDS);
+        if (packageNames == null || shortcutIds == null) return entries;
+        // the order is the rank, scores stay inside of the provider
+        for (int i = 0; i < Math.min(packageNames.length, shortcutIds.length); i++) {
+            entries.add(new AppShortcutUsage.Entry(packageNames[i], shortcutIds[i], 0, 0));
+        }
+        return entries;
+    }
+
+    private List<Object[]> getRows(String packageName) throws Exception {
+        PackageRows packageRows;
+        synchronized (cache) {
+            packageRows = cache.get(packageName);
+            if (packageRows == null) {
+                packageRows = new PackageRows();
+                cache.put(packageName, packageRows);
+            }
+        }
+
+        // parsing happens under the package lock so concurrent queries
+        // never parse a package twice or wait for other packages
+        synchronized (packageRows) {
+            if (packageRows.rows == null) {
+                packageRows.rows = parseRows(packageName);
+            }
+            return packageRows.rows;
+        }
+    }
+
+    /**
+     * Parses the cursor rows of the package
+     */
+    List<Object[]> parseRows(String packageName) throws Exception {
+        List<AppShortcut> shortcuts;
+        try {
+            // icons are inflated by the caller
+            shortcuts = AppShortcutsCompat.parseAppShortcuts(getContext(), packageName, false);
+        } catch (PackageManager.NameNotFoundException e) {
+            // the package has no shortcuts until a package broadcast says otherwise
+            return new ArrayList<>();
+        }
+
+        List<Object[]> rows = new ArrayList<>(shortcuts.size());
+        for (AppShortcut shortcut : shortcuts) {
+            rows.add(new Object[]{
+                    shortcut.getId(),
+                    shortcut.getActivity().flattenToString(),
+                    shortcut.getIntent().toUri(0),
+                    shortcut.getShortLabel().toString(),
+                    shortcut.getLongLabel().toString(),
+                    shortcut.getDisabledMessage().toString(),
+                    shortcut.getIconResId()
+            });
+        }
+        return rows;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static String getLocales(Configuration config) {
+        // labels resolve against the whole locale list, not only the primary locale
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            return config.getLocales().toLanguageTags();
+        }
+        return String.valueOf(config.locale);
+    }
+
+    private void invalidate(String packageName) {
+        synchronized (cache) {
+            cache.remove(packageName);
+        }
+        // also notify uncached packages so root observers hear about every package
+        notifyChange(getContentUri(authority, packageName));
+    }
+
+    private void notifyChange(Uri uri) {
+        getContext().getContentResolver().notifyChange(uri, null);
+    }
+
+    /**
+     * Cached rows of a package, guarded by its own lock
+     */
+    private static final class PackageRows {
+        List<Object[]> rows;
+    }
+}
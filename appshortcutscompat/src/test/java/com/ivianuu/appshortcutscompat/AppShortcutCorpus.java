@@ -0,0 +1,180 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.appshortcutscompat;
+
+import android.content.pm.ActivityInfo;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deterministic corpus of generated packages
+ */
+final class AppShortcutCorpus {
+
+    private static final String NAMESPACE_ANDROID = "http://schemas.android.com/apk/res/android";
+    private static final int SHORTCUTS_RES_ID_BASE = 0x7f0b0000;
+
+    private final List<Package> packages;
+    private final int shortcutCount;
+
+    private AppShortcutCorpus(List<Package> packages, int shortcutCount) {
+        this.packages = packages;
+        this.shortcutCount = shortcutCount;
+    }
+
+    /**
+     * A generated package with its manifest and shortcut xml files
+     */
+    static final class Package {
+
+        final String packageName;
+        final String manifestXml;
+        final Map<Integer, String> shortcutsXml;
+        final PackageInfo packageInfo;
+
+        Package(String packageName,
+                String manifestXml,
+                Map<Integer, String> shortcutsXml,
+                PackageInfo packageInfo) {
+            this.packageName = packageName;
+            this.manifestXml = manifestXml;
+            this.shortcutsXml = shortcutsXml;
+            this.packageInfo = packageInfo;
+        }
+    }
+
+    /**
+     * Generates a corpus with the given amount of packages
+     */
+    static AppShortcutCorpus generate(int packageCount, int iconResId) {
+        List<Package> packages = new ArrayList<>(packageCount);
+        int shortcutCount = 0;
+
+        for (int i = 0; i < packageCount; i++) {
+            String packageName = "com.example.generated" + i;
+            int activityCount = 1 + i % 3;
+
+            StringBuilder manifest = new StringBuilder()
+                    .append("<manifest xmlns:android=\"").append(NAMESPACE_ANDROID)
+                    .append("\" package=\"").append(packageName).append("\">")
+                    .append("<uses-permission android:name=\"android.permission.INTERNET\"/>")
+                    .append("<application android:label=\"Generated ").append(i).append("\">");
+
+            Map<Integer, String> shortcutsXml = new HashMap<>();
+            ActivityInfo[] activities = new ActivityInfo[activityCount + 1];
+
+            for (int a = 0; a < activityCount; a++) {
+                String activityName = packageName + ".Activity" + a;
+                int resId = SHORTCUTS_RES_ID_BASE + a;
+
+                manifest.append("<activity android:name=\"").append(activityName).append("\">")
+                        .append("<intent-filter>")
+                        .append("<action android:name=\"android.intent.action.MAIN\"/>")
+                        .append("<category android:name=\"android.intent.category.LAUNCHER\"/>")
+                        .append("</intent-filter>")
+                        .append("<meta-data android:name=\"android.app.shortcuts\" android:resource=\"@")
+                        .append(resId).append("\"/>")
+                        .append("</activity>");
+
+                int count = 2 + (i + a) % 4;
+                shortcutsXml.put(resId, shortcuts(activityName, count, iconResId));
+                shortcutCount += count;
+
+                activities[a] = activity(packageName, activityName);
+            }
+
+            // an activity without shortcuts which only has to be skipped
+            String settingsName = packageName + ".SettingsActivity";
+            manifest.append("<activity android:name=\"").append(settingsName).append("\"/>")
+                    .append("</application>")
+                    .append("</manifest>");
+            activities[activityCount] = activity(packageName, settingsName);
+
+            ApplicationInfo applicationInfo = new ApplicationInfo();
+            applicationInfo.packageName = packageName;
+
+            PackageInfo packageInfo = new PackageInfo();
+            packageInfo.packageName = packageName;
+            packageInfo.applicationInfo = applicationInfo;
+            packageInfo.activities = activities;
+
+            packages.add(new Package(packageName, manifest.toString(), shortcutsXml, packageInfo));
+        }
+
+        return new AppShortcutCorpus(packages, shortcutCount);
+    }
+
+    /**
+     * Returns all packages
+     */
+    List<Package> getPackages() {
+        return packages;
+    }
+
+    /**
+     * Returns the total amount of shortcuts in all packages
+     */
+    int getShortcutCount() {
+        return shortcutCount;
+    }
+
+    /**
+     * Returns a parser positioned at the start of the document
+     */
+    static XmlPullParser newParser(String xml) throws XmlPullParserException {
+        XmlPullParser parser = Xml.newPullParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+        parser.setInput(new StringReader(xml));
+        return parser;
+    }
+
+    private static String shortcuts(String activityName, int count, int iconResId) {
+        StringBuilder xml = new StringBuilder()
+                .append("<shortcuts xmlns:android=\"").append(NAMESPACE_ANDROID).append("\">");
+        for (int s = 0; s < count; s++) {
+            xml.append("<shortcut android:shortcutId=\"shortcut").append(s)
+                    .append("\" android:enabled=\"true\"")
+                    .append(" android:icon=\"@").append(iconResId)
+                    .append("\" android:shortcutShortLabel=\"Short ").append(s)
+                    .append("\" android:shortcutLongLabel=\"Long label ").append(s)
+                    .append("\" android:shortcutDisabledMessage=\"Disabled ").append(s).append("\">")
+                    .append("<intent android:action=\"android.intent.action.VIEW\"")
+                    .append(" android:data=\"content://generated/").append(s).append("\"/>")
+                    .append("<categories android:name=\"android.shortcut.conversation\"/>")
+                    .append("</shortcut>");
+        }
+        return xml.append("</shortcuts>").toString();
+    }
+
+    private static ActivityInfo activity(String packageName, String activityName) {
+        ActivityInfo info = new ActivityInfo();
+        info.packageName = packageName;
+        info.name = activityName;
+        info.exported = true;
+        return info;
+    }
+}
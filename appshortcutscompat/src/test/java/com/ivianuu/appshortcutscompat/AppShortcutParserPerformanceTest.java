@@ -0,0 +1,240 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.appshortcutscompat;
+
+import android.content.ComponentName;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.res.Resources;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.xmlpull.v1.XmlPullParser;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Guards the parse time, allocations and retained heap of the parsers
+ * against a fixed corpus of generated packages
+ *
+ * The package setup phase covers the package manager lookups of
+ * {@link AppShortcutsCompat#getAppShortcuts(android.content.Context, String)} against installed
+ * shadow packages. Creating the package context, adding the asset path and resources.getXml()
+ * need real apks on disk, which the generated packages don't have on Robolectric,
+ * so those calls are not covered here.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 26)
+public class AppShortcutParserPerformanceTest {
+
+    private static final int PACKAGE_COUNT = 400;
+    private static final int WARMUP_RUNS = 3;
+
+    // budgets
+    private static final long TOTAL_TIME_BUDGET_MS = 3000;
+    private static final long SETUP_ALLOCATION_BUDGET_PER_PACKAGE = 16 * 1024;
+    private static final long MANIFEST_ALLOCATION_BUDGET_PER_PACKAGE = 64 * 1024;
+    private static final long SHORTCUTS_ALLOCATION_BUDGET_PER_PACKAGE = 512 * 1024;
+    private static final long RETAINED_HEAP_BUDGET_PER_SHORTCUT = 8 * 1024;
+
+    private AppShortcutCorpus corpus;
+    private Resources resources;
+    private PackageManager packageManager;
+    private com.sun.management.ThreadMXBean threadBean;
+
+    @Before
+    public void setUp() {
+        // allocation tracking needs a hotspot compatible jvm, skip elsewhere
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        corpus = AppShortcutCorpus.generate(PACKAGE_COUNT, android.R.drawable.sym_def_app_icon);
+        resources = RuntimeEnvironment.application.getResources();
+        packageManager = RuntimeEnvironment.application.getPackageManager();
+        for (AppShortcutCorpus.Package pkg : corpus.getPackages()) {
+            shadowOf(packageManager).addPackage(pkg.packageInfo);
+        }
+    }
+
+    @Test
+    public void parsingStaysWithinBudgets() throws Exception {
+        // warm up class loading, the jit and the resource caches
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            parseCorpus(new Phase("warmup"), new Phase("warmup"), new Phase("warmup"));
+        }
+
+        Phase setupPhase = new Phase("package setup");
+        Phase manifestPhase = new Phase("AppShortcutPackageParser");
+        Phase shortcutsPhase = new Phase("AppShortcutParser");
+
+        long heapBefore = usedHeap();
+        List<AppShortcut> shortcuts = parseCorpus(setupPhase, manifestPhase, shortcutsPhase);
+        long retainedHeap = usedHeap() - heapBefore;
+
+        assertEquals(corpus.getShortcutCount(), shortcuts.size());
+
+        long totalTimeMs = (setupPhase.nanos + manifestPhase.nanos + shortcutsPhase.nanos) / 1000000;
+        long retainedPerShortcut = retainedHeap / shortcuts.size();
+
+        List<String> failures = new ArrayList<>();
+        if (totalTimeMs > TOTAL_TIME_BUDGET_MS) {
+            failures.add(String.format(Locale.US, "total parse time %d ms > %d ms",
+                    totalTimeMs, TOTAL_TIME_BUDGET_MS));
+        }
+        if (setupPhase.bytesPerPackage() > SETUP_ALLOCATION_BUDGET_PER_PACKAGE) {
+            failures.add(String.format(Locale.US, "%s allocated %d bytes/package > %d",
+                    setupPhase.name, setupPhase.bytesPerPackage(), SETUP_ALLOCATION_BUDGET_PER_PACKAGE));
+        }
+        if (manifestPhase.bytesPerPackage() > MANIFEST_ALLOCATION_BUDGET_PER_PACKAGE) {
+            failures.add(String.format(Locale.US, "%s allocated %d bytes/package > %d",
+                    manifestPhase.name, manifestPhase.bytesPerPackage(), MANIFEST_ALLOCATION_BUDGET_PER_PACKAGE));
+        }
+        if (shortcutsPhase.bytesPerPackage() > SHORTCUTS_ALLOCATION_BUDGET_PER_PACKAGE) {
+            failures.add(String.format(Locale.US, "%s allocated %d bytes/package > %d",
+                    shortcutsPhase.name, shortcutsPhase.bytesPerPackage(), SHORTCUTS_ALLOCATION_BUDGET_PER_PACKAGE));
+        }
+        if (retainedPerShortcut > RETAINED_HEAP_BUDGET_PER_SHORTCUT) {
+            failures.add(String.format(Locale.US, "retained heap %d bytes/shortcut > %d",
+                    retainedPerShortcut, RETAINED_HEAP_BUDGET_PER_SHORTCUT));
+        }
+
+        if (!failures.isEmpty()) {
+            fail(report(failures, new Phase[]{setupPhase, manifestPhase, shortcutsPhase},
+                    retainedHeap, shortcuts.size()));
+        }
+    }
+
+    private List<AppShortcut> parseCorpus(Phase setupPhase,
+                                          Phase manifestPhase,
+                                          Phase shortcutsPhase) throws Exception {
+        List<AppShortcut> shortcuts = new ArrayList<>();
+
+        for (AppShortcutCorpus.Package pkg : corpus.getPackages()) {
+            // the package manager lookups getAppShortcuts does once per package
+            long start = setupPhase.begin();
+            packageManager.getApplicationInfo(pkg.packageName,
+                    PackageManager.GET_META_DATA | PackageManager.GET_SHARED_LIBRARY_FILES);
+            PackageInfo packageInfo = packageManager.getPackageInfo(pkg.packageName, PackageManager.GET_ACTIVITIES);
+            setupPhase.end(start);
+
+            // parsers are created outside of the measured sections
+            XmlPullParser manifestParser = AppShortcutCorpus.newParser(pkg.manifestXml);
+
+            start = manifestPhase.begin();
+            Map<ComponentName, Integer> resMap =
+                    AppShortcutPackageParser.parseManifest(manifestParser, pkg.packageName);
+            manifestPhase.end(start);
+
+            for (Map.Entry<ComponentName, Integer> entry : resMap.entrySet()) {
+                XmlPullParser shortcutsParser =
+                        AppShortcutCorpus.newParser(pkg.shortcutsXml.get(entry.getValue()));
+
+                start = shortcutsPhase.begin();
+                List<AppShortcut> parsed = AppShortcutParser.parse(
+                        resources, packageInfo, entry.getKey(), shortcutsParser, true);
+                shortcutsPhase.end(start);
+
+                shortcuts.addAll(parsed);
+            }
+
+            setupPhase.packages++;
+            manifestPhase.packages++;
+            shortcutsPhase.packages++;
+        }
+
+        return shortcuts;
+    }
+
+    private String report(List<String> failures,
+                          Phase[] phases,
+                          long retainedHeap,
+                          int shortcutCount) {
+        StringBuilder report = new StringBuilder("Performance budgets exceeded:\n");
+        for (String failure : failures) {
+            report.append("  - ").append(failure).append('\n');
+        }
+        report.append(String.format(Locale.US, "%n%-26s %10s %14s %16s%n",
+                "phase", "time ms", "us/package", "bytes/package"));
+        for (Phase phase : phases) {
+            report.append(String.format(Locale.US, "%-26s %10d %14d %16d%n",
+                    phase.name, phase.nanos / 1000000, phase.microsPerPackage(), phase.bytesPerPackage()));
+        }
+        report.append(String.format(Locale.US, "%nretained heap: %d bytes for %d shortcuts of %d packages",
+                retainedHeap, shortcutCount, corpus.getPackages().size()));
+        return report.toString();
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Accumulated cost of one phase
+     */
+    private final class Phase {
+
+        final String name;
+        long nanos;
+        long bytes;
+        int packages;
+
+        private long startBytes;
+
+        Phase(String name) {
+            this.name = name;
+        }
+
+        long begin() {
+            startBytes = threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            return System.nanoTime();
+        }
+
+        void end(long start) {
+            nanos += System.nanoTime() - start;
+            bytes += threadBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - startBytes;
+        }
+
+        long microsPerPackage() {
+            return packages == 0 ? 0 : nanos / 1000 / packages;
+        }
+
+        long bytesPerPackage() {
+            return packages == 0 ? 0 : bytes / packages;
+        }
+    }
+}
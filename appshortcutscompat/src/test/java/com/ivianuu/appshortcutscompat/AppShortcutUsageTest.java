@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.appshortcutscompat;
+
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 26)
+public class AppShortcutUsageTest {
+
+    private static final long T0 = 1500000000000L;
+    private static final double DELTA = 1e-9;
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+    }
+
+    @Test
+    public void repeatedLaunchesAddUp() {
+        AppShortcutUsage.recordLaunch(context, "com.example", "compose", T0);
+        AppShortcutUsage.recordLaunch(context, "com.example", "compose", T0);
+        AppShortcutUsage.recordLaunch(context, "com.example", "compose", T0);
+
+        List<AppShortcutUsage.Entry> entries = AppShortcutUsage.getRankedEntries(context, T0);
+        assertEquals(1, entries.size());
+        assertEquals(3, entries.get(0).score, DELTA);
+    }
+
+    @Test
+    public void scoreHalvesAfterHalfLife() {
+        AppShortcutUsage.recordLaunch(context, "com.example", "compose", T0);
+        AppShortcutUsage.recordLaunch(context, "com.example", "compose", T0);
+
+        List<AppShortcutUsage.Entry> entries =
+                AppShortcutUsage.getRankedEntries(context, T0 + AppShortcutUsage.HALF_LIFE);
+        assertEquals(1, entries.get(0).score, DELTA);
+
+        entries = AppShortcutUsage.getRankedEntries(context, T0 + 2 * AppShortcutUsage.HALF_LIFE);
+        assertEquals(0.5, entries.get(0).score, DELTA);
+    }
+
+    @Test
+    public void newerLaunchWinsTies() {
+        AppShortcutUsage.recordLaunch(context, "com.example", "old", T0);
+        AppShortcutUsage.recordLaunch(context, "com.example", "old", T0);
+        long t1 = T0 + AppShortcutUsage.HALF_LIFE;
+        AppShortcutUsage.recordLaunch(context, "com.example", "new", t1);
+
+        List<AppShortcutUsage.Entry> entries = AppShortcutUsage.getRankedEntries(context, t1);
+        assertEquals(entries.get(0).score, entries.get(1).score, DELTA);
+        assertEquals("new", entries.get(0).shortcutId);
+        assertEquals("old", entries.get(1).shortcutId);
+    }
+
+    @Test
+    public void newLaunchSurvivesFullStoreOfHigherScores() {
+        for (int i = 0; i < AppShortcutUsage.MAX_ENTRIES; i++) {
+            for (int j = 0; j < 5; j++) {
+                AppShortcutUsage.recordLaunch(context, "com.example", "shortcut" + i, T0);
+            }
+        }
+
+        // every existing entry decayed to 2.5 which still beats a fresh launch
+        long t1 = T0 + AppShortcutUsage.HALF_LIFE;
+        AppShortcutUsage.recordLaunch(context, "com.example", "fresh", t1);
+
+        List<AppShortcutUsage.Entry> entries = AppShortcutUsage.getRankedEntries(context, t1);
+        assertEquals(AppShortcutUsage.MAX_ENTRIES, entries.size());
+        AppShortcutUsage.Entry fresh = find(entries, "com.example", "fresh");
+        assertNotNull(fresh);
+        assertEquals(1, fresh.score, DELTA);
+
+        // the next launch builds on the kept score
+        AppShortcutUsage.recordLaunch(context, "com.example", "fresh", t1);
+        fresh = find(AppShortcutUsage.getRankedEntries(context, t1), "com.example", "fresh");
+        assertNotNull(fresh);
+        assertEquals(2, fresh.score, DELTA);
+    }
+
+    @Test
+    public void removeEntriesKeepsLiveEntries() {
+        AppShortcutUsage.recordLaunch(context, "com.example", "live", T0);
+        AppShortcutUsage.recordLaunch(context, "com.example", "dead", T0);
+        AppShortcutUsage.recordLaunch(context, "com.other", "dead", T0);
+
+        List<AppShortcutUsage.Entry> dead = new ArrayList<>();
+        dead.add(new AppShortcutUsage.Entry("com.example", "dead", 0, 0));
+        dead.add(new AppShortcutUsage.Entry("com.other", "dead", 0, 0));
+        AppShortcutUsage.removeEntries(context, dead);
+
+        List<AppShortcutUsage.Entry> entries = AppShortcutUsage.getRankedEntries(context, T0);
+        assertEquals(1, entries.size());
+        assertNotNull(find(entries, "com.example", "live"));
+    }
+
+    @Test
+    public void removePackageOnlyRemovesThatPackage() {
+        AppShortcutUsage.recordLaunch(context, "com.example", "a", T0);
+        AppShortcutUsage.recordLaunch(context, "com.example", "b", T0);
+        AppShortcutUsage.recordLaunch(context, "com.example.other", "a", T0);
+
+        AppShortcutUsage.removePackage(context, "com.example");
+
+        List<AppShortcutUsage.Entry> entries = AppShortcutUsage.getRankedEntries(context, T0);
+        assertEquals(1, entries.size());
+        assertNull(find(entries, "com.example", "a"));
+        assertNotNull(find(entries, "com.example.other", "a"));
+    }
+
+    private static AppShortcutUsage.Entry find(List<AppShortcutUsage.Entry> entries,
+                                               String packageName,
+                                               String shortcutId) {
+        for (AppShortcutUsage.Entry entry : entries) {
+            if (entry.packageName.equals(packageName) && entry.shortcutId.equals(shortcutId)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017 Manuel Wrage
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ivianuu.appshortcutscompat;
+
+import android.content.Intent;
+import android.content.res.Configuration;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.LocaleList;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowContentResolver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 26)
+public class AppShortcutsProviderTest {
+
+    private static final String AUTHORITY = "com.ivianuu.appshortcutscompat.test";
+    private static final String PACKAGE_A = "com.example.a";
+    private static final String PACKAGE_B = "com.example.b";
+
+    private CountingProvider provider;
+    private ShadowContentResolver contentResolver;
+
+    @Before
+    public void setUp() {
+        provider = Robolectric.buildContentProvider(CountingProvider.class).create(AUTHORITY).get();
+        contentResolver = shadowOf(RuntimeEnvironment.application.getContentResolver());
+    }
+
+    @Test
+    public void parsesPackageOnceAcrossQueries() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1, query(PACKAGE_A));
+        }
+        query(PACKAGE_B);
+
+        assertEquals(1, provider.parseCount(PACKAGE_A));
+        assertEquals(1, provider.parseCount(PACKAGE_B));
+    }
+
+    @Test
+    public void packageBroadcastClearsOnlyThatPackage() {
+        query(PACKAGE_A);
+        query(PACKAGE_B);
+
+        RuntimeEnvironment.application.sendBroadcast(
+                new Intent(Intent.ACTION_PACKAGE_CHANGED, Uri.fromParts("package", PACKAGE_A, null)));
+        Robolectric.flushForegroundThreadScheduler();
+
+        assertTrue(wasNotified(AppShortcutsProvider.getContentUri(AUTHORITY, PACKAGE_A)));
+
+        query(PACKAGE_A);
+        query(PACKAGE_B);
+        assertEquals(2, provider.parseCount(PACKAGE_A));
+        assertEquals(1, provider.parseCount(PACKAGE_B));
+    }
+
+    @Test
+    public void packageBroadcastNotifiesUncachedPackages() {
+        RuntimeEnvironment.application.sendBroadcast(
+                new Intent(Intent.ACTION_PACKAGE_ADDED, Uri.fromParts("package", PACKAGE_B, null)));
+        Robolectric.flushForegroundThreadScheduler();
+
+        assertTrue(wasNotified(AppShortcutsProvider.getContentUri(AUTHORITY, PACKAGE_B)));
+    }
+
+    @Test
+    public void localeChangeClearsEverything() {
+        query(PACKAGE_A);
+        query(PACKAGE_B);
+
+        Configuration config = new Configuration(RuntimeEnvironment.application.getResources().getConfiguration());
+        LocaleList locales = config.getLocales();
+        // only a secondary locale changes, labels may still resolve differently
+        config.setLocales(new LocaleList(locales.get(0), Locale.JAPAN));
+        provider.onConfigurationChanged(config);
+
+        assertTrue(wasNotified(AppShortcutsProvider.getContentUri(AUTHORITY)));
+
+        query(PACKAGE_A);
+        query(PACKAGE_B);
+        assertEquals(2, provider.parseCount(PACKAGE_A));
+        assertEquals(2, provider.parseCount(PACKAGE_B));
+    }
+
+    @Test
+    public void otherConfigurationChangesKeepTheIndex() {
+        query(PACKAGE_A);
+
+        Configuration config = new Configuration(RuntimeEnvironment.application.getResources().getConfiguration());
+        config.orientation = config.orientation == Configuration.ORIENTATION_LANDSCAPE
+                ? Configuration.ORIENTATION_PORTRAIT : Configuration.ORIENTATION_LANDSCAPE;
+        provider.onConfigurationChanged(config);
+
+        assertFalse(wasNotified(AppShortcutsProvider.getContentUri(AUTHORITY)));
+
+        query(PACKAGE_A);
+        assertEquals(1, provider.parseCount(PACKAGE_A));
+    }
+
+    private int query(String packageName) {
+        Cursor cursor = provider.query(
+                AppShortcutsProvider.getContentUri(AUTHORITY, packageName), null, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private boolean wasNotified(Uri uri) {
+        for (ShadowContentResolver.NotifiedUri notifiedUri : contentResolver.getNotifiedUris()) {
+            if (uri.equals(notifiedUri.uri)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Provider which serves a fake row per package and counts the parses
+     */
+    public static class CountingProvider extends AppShortcutsProvider {
+
+        private final Map<String, Integer> parseCounts = new HashMap<>();
+
+        @Override
+        List<Object[]> parseRows(String packageName) {
+            Integer count = parseCounts.get(packageName);
+            parseCounts.put(packageName, count == null ? 1 : count + 1);
+
+            List<Object[]> rows = new ArrayList<>();
+            rows.add(new Object[]{
+                    "shortcut",
+                    packageName + "/.MainActivity",
+                    "#Intent;end",
+                    "Short",
+                    "Long",
+                    "",
+                    0
+            });
+            return rows;
+        }
+
+        int parseCount(String packageName) {
+            Integer count = parseCounts.get(packageName);
+            return count == null ? 0 : count;
+        }
+    }
+}
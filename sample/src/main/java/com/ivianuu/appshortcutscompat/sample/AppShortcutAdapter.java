@@ -24,6 +24,7 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.ivianuu.appshortcutscompat.AppShortcut;
+import com.ivianuu.appshortcutscompat.AppShortcutsCompat;
 
 import java.util.List;
 
@@ -49,7 +50,7 @@ class AppShortcutAdapter extends RecyclerView.Adapter<AppShortcutAdapter.AppShor
         final AppShortcut appShortcut = shortcutInfos.get(position);
         holder.name.setText(appShortcut.getShortLabel());
         holder.icon.setImageDrawable(appShortcut.getIcon());
-        holder.itemView.setOnClickListener(v -> v.getContext().startActivity(appShortcut.getIntent()));
+        holder.itemView.setOnClickListener(v -> AppShortcutsCompat.startAppShortcut(v.getContext(), appShortcut));
     }
 
     @Override